@@ -2,16 +2,14 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
 import soot.options.Options;
-import utils.Dom4jParser;
+import utils.ClassHierarchy;
 import utils.ExtendedDefaultParser;
+import utils.SnapshotClassHierarchy;
+import utils.SootClassHierarchy;
+import utils.TokenFileWriter;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.List;
 
 
 public class Main {
@@ -19,6 +17,7 @@ public class Main {
     private static String package_name;
     private static String apktool_dir;
     private static String token_files_dir;
+    private static String hierarchy_snapshot_path;
 
     private static void commandParser(ExtendedDefaultParser parser, String[] args) {
         // 命令行解析器
@@ -26,6 +25,7 @@ public class Main {
         options.addOption("package", true, "apk package name");
         options.addOption("atd", "apktool-dir", true, "directory of apktool result");
         options.addOption("td", "token-dir", true, "directory to save token list file");
+        options.addOption("hs", "hierarchy-snapshot", true, "file to record the class hierarchy snapshot for replay");
 
         CommandLine cmd = null;
 
@@ -40,64 +40,17 @@ public class Main {
         package_name = cmd.getOptionValue("package");
         apktool_dir = cmd.getOptionValue("atd");
         token_files_dir = cmd.getOptionValue("td");
+        hierarchy_snapshot_path = cmd.getOptionValue("hs");
 
         System.out.println("Package name: " + package_name);
         System.out.println("Apktool directory path: " + apktool_dir);
     }
 
-    private static void writeTokensFile(String layoutDirPath, String tokenPath) {
-        File folder = new File(layoutDirPath);
-        File[] files = folder.listFiles();
-        if (files != null) {
-            System.out.println(files.length + " layout files read from APK processing ...");
-            try {
-                Path tokenFilePath = Paths.get(tokenPath);
-                Files.deleteIfExists(tokenFilePath);
-                Files.createFile(tokenFilePath);
-
-                StringBuilder itemsb = new StringBuilder();
-                StringBuilder layoutsb = new StringBuilder();
-                for (File f : files) {
-                    if (f.isFile()) {
-                        // 打开每个文件进行解析，解析结果为 tokens
-                        String fileName = f.getName();
-                        String fileNameLower = fileName.toLowerCase();
-                        Dom4jParser parser = new Dom4jParser(f.getAbsolutePath());
-                        parser.parse();
-                        List<String> tokens = parser.getTokens();
-
-                        if (tokens.size() > 0 && (tokens.contains("Toolbar") || tokens.contains("Button") || tokens.contains("TextView") ||
-                                tokens.contains("ImageView") || tokens.contains("EditText") || tokens.contains("CheckBox") ||
-                                tokens.contains("RadioButton") || tokens.contains("Switch") || tokens.contains("List"))) {
-                            boolean isLayout = fileNameLower.contains("fragment") || fileNameLower.contains("activity");
-                            boolean isListItem = fileNameLower.startsWith("item_") || fileNameLower.endsWith("_item.xml") || fileNameLower.contains("_item_") ||
-                                    fileNameLower.startsWith("row_") || fileNameLower.endsWith("_row.xml") || fileNameLower.contains("_row_") ||
-                                    fileNameLower.startsWith("card_") || fileNameLower.endsWith("_card.xml") || fileNameLower.contains("_card_") ||
-                                    fileNameLower.startsWith("cardview_") || fileNameLower.endsWith("_cardview.xml") || fileNameLower.contains("_cardview_") ||
-                                    fileNameLower.startsWith("listitem_") || fileNameLower.endsWith("_listitem.xml") || fileNameLower.contains("_listitem_") ||
-                                    fileNameLower.startsWith("listrow_") || fileNameLower.endsWith("_listrow.xml") || fileNameLower.contains("_listrow_");
-                            boolean shouldExclude = fileNameLower.startsWith("abc_") || fileNameLower.startsWith("preference_") || fileNameLower.startsWith("notification_") ||
-                                    fileNameLower.startsWith("date_picker_") || fileNameLower.startsWith("time_picker_") || fileNameLower.startsWith("select_dialog_") ||
-                                    fileNameLower.startsWith("support_simple_spinner_dropdown_item");
-
-                            if (!shouldExclude) {
-                                if (isListItem) {
-                                    itemsb.append("2 ").append(fileName).append(" ").append(String.join(" ", tokens)).append("\n");
-                                } else if (isLayout) {
-                                    layoutsb.append("1 ").append(fileName).append(" ").append(String.join(" ", tokens)).append("\n");
-                                }
-                            }
-                        }
-                    }
-                }
-
-                Files.write(tokenFilePath, itemsb.toString().getBytes(), StandardOpenOption.APPEND);
-                Files.write(tokenFilePath, layoutsb.toString().getBytes(), StandardOpenOption.APPEND);
-
-                System.out.println("Output saved in " + tokenPath);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    private static void writeTokensFile(String layoutDirPath, String tokenPath, ClassHierarchy hierarchy) {
+        int fileCount = new TokenFileWriter(hierarchy).write(layoutDirPath, tokenPath);
+        if (fileCount >= 0) {
+            System.out.println(fileCount + " layout files read from APK processing ...");
+            System.out.println("Output saved in " + tokenPath);
         }
     }
 
@@ -120,12 +73,25 @@ public class Main {
 //        System.out.println("soot classes: " + Scene.v().getClasses());
 //        System.out.println("------------\nvalid layout: " + vlr.getValidLayoutFileName());
 
+        // 指定 -hierarchy-snapshot 时记录解析过程中查询到的继承关系，供 bench.GoldenReplay 离线重放
+        SnapshotClassHierarchy snapshot = hierarchy_snapshot_path == null ? null : new SnapshotClassHierarchy(new SootClassHierarchy());
+        ClassHierarchy hierarchy = snapshot == null ? new SootClassHierarchy() : snapshot;
+
         long startTime = System.currentTimeMillis();
         writeTokensFile(apktool_dir + File.separator + "res" + File.separator + "layout",
-                token_files_dir + File.separator + package_name + "-layout.tmp.lst");
+                token_files_dir + File.separator + package_name + "-layout.tmp.lst", hierarchy);
         long endTime = System.currentTimeMillis();
         System.out.println("Writing files time: " + (endTime - startTime) + "ms");
 
+        if (snapshot != null) {
+            try {
+                snapshot.save(hierarchy_snapshot_path);
+                System.out.println("Class hierarchy snapshot saved in " + hierarchy_snapshot_path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,348 @@
+package bench;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import utils.ClassHierarchy;
+import utils.SnapshotClassHierarchy;
+import utils.TokenFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/***
+ * 基于语料库的回放测试：不需要 APK 和 Soot，
+ * 用语料库中 apktool 反编译得到的 layout 文件夹和录制的继承关系快照重放 TokenFileWriter，
+ * 逐字节比较输出与 golden 文件，并记录各阶段耗时、堆内存峰值和分配速率。
+ * 吞吐量（预热后各轮中位数，每秒在内存中处理的 layout 文件数）低于基线超过阈值时以非零状态退出。
+ *
+ * 语料库中每个用例为一个文件夹：
+ *   res/layout/     layout 文件（apktool 反编译结果或布局源文件）
+ *   hierarchy.lst   继承关系快照，格式见 SnapshotClassHierarchy（可由 Main 的 -hierarchy-snapshot 参数录制）
+ *   golden.lst      期望的 token 文件
+ */
+public class GoldenReplay {
+
+    private static final String[] PHASES = {TokenFileWriter.PHASE_LIST, TokenFileWriter.PHASE_PARSE,
+            TokenFileWriter.PHASE_CLASSIFY, TokenFileWriter.PHASE_WRITE};
+
+    private static String corpus_dir;
+    private static String baseline_path;
+    private static int warmup_ms;
+    private static int iterations;
+    private static int rounds;
+    private static int round_ms;
+    private static double threshold;
+    private static boolean update_golden;
+    private static boolean update_baseline;
+
+    private static void commandParser(String[] args) {
+        Options options = new Options();
+        options.addOption("c", "corpus", true, "corpus directory, default: corpus");
+        options.addOption("b", "baseline", true, "throughput baseline file, default: <corpus>/baseline.properties");
+        options.addOption("w", "warmup-ms", true, "maximum warmup duration per case in milliseconds, warmup stops earlier once round times stop dropping, default: 30000");
+        options.addOption("n", "iterations", true, "measured iterations per round, default: calibrated from -round-ms");
+        options.addOption("m", "round-ms", true, "minimum duration of a measured round in milliseconds, default: 250");
+        options.addOption("r", "rounds", true, "measured rounds per case, the median round is compared with baseline, default: 21");
+        options.addOption("t", "threshold", true, "allowed throughput regression in percent, default: 20");
+        options.addOption("ug", "update-golden", false, "overwrite golden files with current output");
+        options.addOption("ub", "update-baseline", false, "overwrite baseline with current throughput");
+
+        CommandLine cmd = null;
+
+        try {
+            cmd = new DefaultParser().parse(options, args);
+            corpus_dir = cmd.getOptionValue("c", "corpus");
+            baseline_path = cmd.getOptionValue("b", corpus_dir + File.separator + "baseline.properties");
+            warmup_ms = Integer.parseInt(cmd.getOptionValue("w", "30000"));
+            iterations = Integer.parseInt(cmd.getOptionValue("n", "0"));
+            round_ms = Integer.parseInt(cmd.getOptionValue("m", "250"));
+            rounds = Integer.parseInt(cmd.getOptionValue("r", "21"));
+            threshold = Double.parseDouble(cmd.getOptionValue("t", "20"));
+            if (warmup_ms < 0 || (cmd.hasOption("n") && iterations <= 0) || round_ms <= 0 || rounds <= 0) {
+                throw new ParseException("warmup-ms must not be negative, iterations, round-ms and rounds must be positive");
+            }
+            if (!(threshold >= 0)) {
+                throw new ParseException("threshold must not be negative");
+            }
+        } catch (ParseException | NumberFormatException e) {
+            System.out.println(e.getMessage());
+            new HelpFormatter().printHelp("bench.GoldenReplay", options);
+            System.exit(1);
+        }
+
+        update_golden = cmd.hasOption("ug");
+        update_baseline = cmd.hasOption("ub");
+    }
+
+    public static void main(String[] args) throws IOException {
+        commandParser(args);
+
+        File[] cases = new File(corpus_dir).listFiles(f -> new File(f, "res" + File.separator + "layout").isDirectory());
+        if (cases == null || cases.length == 0) {
+            System.out.println("No case found in corpus: " + corpus_dir);
+            System.exit(1);
+        }
+        Arrays.sort(cases);
+
+        Properties baseline = new Properties();
+        Path baselineFilePath = Paths.get(baseline_path);
+        if (Files.exists(baselineFilePath)) {
+            try (InputStream in = Files.newInputStream(baselineFilePath)) {
+                baseline.load(in);
+            }
+        } else if (!update_baseline) {
+            System.out.println("Baseline not found, performance gate skipped: " + baseline_path);
+        }
+
+        Path outputDir = Files.createTempDirectory("golden-replay");
+        outputDir.toFile().deleteOnExit();
+        List<String> failures = new ArrayList<>();
+        for (File c : cases) {
+            String caseName = c.getName();
+            String layoutDirPath = c.getPath() + File.separator + "res" + File.separator + "layout";
+            String outputPath = outputDir.resolve(caseName + "-layout.tmp.lst").toString();
+            new File(outputPath).deleteOnExit();
+            Path goldenPath = Paths.get(c.getPath(), "golden.lst");
+            Path snapshotPath = Paths.get(c.getPath(), "hierarchy.lst");
+
+            // 没有快照时自定义控件都会被归为 Unclassified，不能据此校验或更新 golden 文件
+            if (!Files.exists(snapshotPath)) {
+                failures.add(caseName + ": hierarchy snapshot not found: " + snapshotPath);
+                continue;
+            }
+            SnapshotClassHierarchy hierarchy;
+            try {
+                hierarchy = SnapshotClassHierarchy.load(snapshotPath.toString());
+            } catch (IOException e) {
+                failures.add(caseName + ": failed to load hierarchy snapshot, " + e.getMessage());
+                continue;
+            }
+            System.out.println("== " + caseName + " (" + hierarchy.size() + " classes in hierarchy snapshot)");
+
+            // 输出校验
+            int fileCount = new TokenFileWriter(hierarchy).write(layoutDirPath, outputPath);
+            if (fileCount < 0) {
+                failures.add(caseName + ": failed to write token file");
+                continue;
+            }
+            if (update_golden) {
+                Files.copy(Paths.get(outputPath), goldenPath, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("Golden file updated: " + goldenPath);
+            } else if (!Files.exists(goldenPath)) {
+                failures.add(caseName + ": golden file not found, run with -update-golden to create it");
+            } else {
+                String diff = diff(goldenPath, Paths.get(outputPath));
+                if (diff != null) {
+                    failures.add(caseName + ": output differs from golden file, " + diff);
+                }
+            }
+
+            // 性能测量
+            double throughput = measure(hierarchy, layoutDirPath, outputPath, fileCount);
+            String key = caseName + ".throughput";
+            if (update_baseline) {
+                baseline.setProperty(key, String.format(Locale.ROOT, "%.1f", throughput));
+            } else if (baseline.containsKey(key)) {
+                double expected;
+                try {
+                    expected = Double.parseDouble(baseline.getProperty(key));
+                } catch (NumberFormatException e) {
+                    expected = 0;
+                }
+                if (!(expected > 0)) {
+                    failures.add(caseName + ": invalid baseline " + key + "=" + baseline.getProperty(key) + ", run with -update-baseline to re-create it");
+                    continue;
+                }
+                double change = (throughput - expected) / expected * 100;
+                if (change < -threshold) {
+                    // 共享机器上偶尔整段测量都受其他负载影响，重新测量一次，真正的性能下降会再次出现
+                    System.out.println(String.format("  baseline     %.1f files/s (%+.1f%%), measuring again", expected, change));
+                    throughput = Math.max(throughput, measure(hierarchy, layoutDirPath, outputPath, fileCount));
+                    change = (throughput - expected) / expected * 100;
+                }
+                System.out.println(String.format("  baseline     %.1f files/s (%+.1f%%)", expected, change));
+                if (change < -threshold) {
+                    failures.add(String.format("%s: throughput regressed %.1f%% against baseline (threshold %.1f%%)",
+                            caseName, -change, threshold));
+                }
+            }
+        }
+
+        if (update_baseline) {
+            try (OutputStream out = Files.newOutputStream(baselineFilePath)) {
+                baseline.store(out, "GoldenReplay throughput baseline in layout files per second");
+            }
+            System.out.println("Baseline updated: " + baseline_path);
+        }
+
+        if (!failures.isEmpty()) {
+            System.out.println("FAILED");
+            for (String failure : failures) {
+                System.out.println("  " + failure);
+            }
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /***
+     * 预热后运行 rounds 轮，每轮只在内存中解析、归类 layout 文件，不写出 token 文件，也不采样堆内存；
+     * 取各轮耗时的中位数计算吞吐量。之后再不计时地运行一轮 write，记录写文件耗时和堆内存峰值（每次运行后采样）。
+     * @return 吞吐量，即每秒处理的 layout 文件数
+     */
+    private static double measure(ClassHierarchy hierarchy, String layoutDirPath, String outputPath, int fileCount) {
+        TokenFileWriter writer = new TokenFileWriter(hierarchy);
+
+        // 预热：每轮运行 round_ms 毫秒，直到单次耗时不再下降（JIT 编译基本完成），最长 warmup_ms 毫秒
+        List<Double> warmupRounds = new ArrayList<>();
+        long warmupStart = System.nanoTime();
+        boolean steady = false;
+        while (!steady && System.nanoTime() - warmupStart < warmup_ms * 1000000L) {
+            long startTime = System.nanoTime();
+            int count = calibrate(writer, layoutDirPath);
+            warmupRounds.add((double) (System.nanoTime() - startTime) / count);
+            steady = isSteady(warmupRounds);
+        }
+        System.out.println(String.format("  warmup       %.1fs, %s", (System.nanoTime() - warmupStart) / 1e9,
+                steady ? "steady" : "stopped at -warmup-ms before reaching steady state"));
+
+        // 未指定 -iterations 时，以预热后 round_ms 毫秒内能运行的次数作为每轮的运行次数
+        int roundIterations = iterations > 0 ? iterations : calibrate(writer, layoutDirPath);
+
+        Map<String, Long> phaseNanos = new LinkedHashMap<>();
+        for (String phase : PHASES) {
+            phaseNanos.put(phase, 0L);
+        }
+        writer.setPhaseNanos(phaseNanos);
+
+        System.gc();
+        long allocatedBefore = allocatedBytes();
+        long[] roundTimes = new long[rounds];
+        long elapsed = 0;
+        for (int r = 0; r < rounds; r++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < roundIterations; i++) {
+                writer.tokenize(writer.listLayoutFiles(layoutDirPath));
+            }
+            roundTimes[r] = System.nanoTime() - startTime;
+            elapsed += roundTimes[r];
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        int total = rounds * roundIterations;
+
+        // 写文件和堆内存采样放在计时轮之外，避免其耗时和分配计入吞吐量
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long peakHeap = memoryBean.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < roundIterations; i++) {
+            writer.write(layoutDirPath, outputPath);
+            peakHeap = Math.max(peakHeap, memoryBean.getHeapMemoryUsage().getUsed());
+        }
+
+        Arrays.sort(roundTimes);
+        long medianRound = roundTimes[rounds / 2];
+        double throughput = (double) fileCount * roundIterations / (medianRound / 1e9);
+        double slowest = (double) fileCount * roundIterations / (roundTimes[rounds - 1] / 1e9);
+        double fastest = (double) fileCount * roundIterations / (roundTimes[0] / 1e9);
+
+        System.out.println(String.format("  %d layout files x %d iterations x %d rounds in %.1fms", fileCount, roundIterations, rounds, elapsed / 1e6));
+        for (Map.Entry<String, Long> entry : phaseNanos.entrySet()) {
+            // write 阶段只在不计时的一轮中运行
+            int runs = entry.getKey().equals(TokenFileWriter.PHASE_WRITE) ? roundIterations : total;
+            System.out.println(String.format("  %-12s %.3fms/iteration", entry.getKey(), entry.getValue() / 1e6 / runs));
+        }
+        System.out.println(String.format("  peak heap    %.1fMB (sampled after each iteration)", peakHeap / 1048576.0));
+        if (allocatedBefore >= 0) {
+            System.out.println(String.format("  allocation   %.1fMB/s (%.1fKB/iteration)",
+                    allocated / 1048576.0 / (elapsed / 1e9), allocated / 1024.0 / total));
+        }
+        System.out.println(String.format("  throughput   %.1f files/s (median of %d rounds, range %.1f to %.1f)", throughput, rounds, slowest, fastest));
+        return throughput;
+    }
+
+    /***
+     * @return round_ms 毫秒内能运行的次数，至少为 1
+     */
+    private static int calibrate(TokenFileWriter writer, String layoutDirPath) {
+        int count = 0;
+        long startTime = System.nanoTime();
+        do {
+            writer.tokenize(writer.listLayoutFiles(layoutDirPath));
+            count++;
+        } while (System.nanoTime() - startTime < round_ms * 1000000L);
+        return count;
+    }
+
+    /***
+     * 最近 10 轮单次耗时的中位数比再往前 20 轮处的 10 轮下降不到 3% 时认为已达到稳定状态；
+     * JIT 编译是分阶段完成的，间隔太近的两段容易落在同一个平台期上
+     */
+    private static boolean isSteady(List<Double> iterationTimes) {
+        int n = iterationTimes.size();
+        if (n < 30) {
+            return false;
+        }
+        double[] previous = new double[10];
+        double[] latest = new double[10];
+        for (int i = 0; i < 10; i++) {
+            previous[i] = iterationTimes.get(n - 30 + i);
+            latest[i] = iterationTimes.get(n - 10 + i);
+        }
+        Arrays.sort(previous);
+        Arrays.sort(latest);
+        return latest[5] >= previous[5] * 0.97;
+    }
+
+    /***
+     * 当前线程累计分配的字节数，JVM 不支持时返回 -1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /***
+     * 逐字节比较两个文件，相同时返回 null，否则返回第一处不同所在行的描述
+     */
+    private static String diff(Path expectedPath, Path actualPath) throws IOException {
+        byte[] expected = Files.readAllBytes(expectedPath);
+        byte[] actual = Files.readAllBytes(actualPath);
+        if (Arrays.equals(expected, actual)) {
+            return null;
+        }
+        String[] expectedLines = new String(expected, StandardCharsets.UTF_8).split("\n", -1);
+        String[] actualLines = new String(actual, StandardCharsets.UTF_8).split("\n", -1);
+        for (int i = 0; i < Math.min(expectedLines.length, actualLines.length); i++) {
+            if (!expectedLines[i].equals(actualLines[i])) {
+                return "first difference at line " + (i + 1) + ":\n    expected: " + expectedLines[i] + "\n    actual:   " + actualLines[i];
+            }
+        }
+        return "expected " + expectedLines.length + " lines but got " + actualLines.length;
+    }
+}
@@ -0,0 +1,12 @@
+package utils;
+
+import java.util.List;
+
+/***
+ * 控件类继承关系的来源。
+ * getAncestors 返回类名本身及其全部父类（由近及远），无法获取的类返回 null。
+ */
+public interface ClassHierarchy {
+
+    List<String> getAncestors(String className);
+}
@@ -7,8 +7,6 @@ import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
-import soot.Scene;
-import soot.SootClass;
 
 import java.io.File;
 import java.util.*;
@@ -20,13 +18,15 @@ public class Dom4jParser {
     private Logger logger = Logger.getLogger(Dom4jParser.class.toString());
 
     private final String fp;
+    private final ClassHierarchy hierarchy;
     private List<String> tokens;
     private LayoutTreeNode layoutTreeRoot;
     private Set<LayoutTreeNode> treeNodeSet;
 
-    public Dom4jParser(String fp) {
+    public Dom4jParser(String fp, ClassHierarchy hierarchy) {
         logger.setLevel(Level.OFF);
         this.fp = fp;
+        this.hierarchy = hierarchy;
         this.treeNodeSet = new HashSet<>();
         this.tokens = new ArrayList<>();
     }
@@ -76,19 +76,12 @@ public class Dom4jParser {
     }
 
     /***
-     * 根据 Soot 运行结果为每个控件节点设置祖先属性
+     * 根据继承关系（Soot 运行结果或其快照）为每个控件节点设置祖先属性
      */
     public void setAllNodesAncestors() {
         for (LayoutTreeNode node : getTreeNodeSet()) {
-            String className = node.getClassName();
-            if (Scene.v().containsClass(className)) {
-                SootClass sc = Scene.v().getSootClass(className);
-                List<String> ancestors = new ArrayList<>();
-                while (sc.hasSuperclass()) {
-                    ancestors.add(sc.getName());
-                    sc = sc.getSuperclass();
-                }
-                ancestors.add(sc.getName());
+            List<String> ancestors = hierarchy.getAncestors(node.getClassName());
+            if (ancestors != null) {
                 node.setAncestors(ancestors);
             }
         }
@@ -122,7 +115,7 @@ public class Dom4jParser {
             if (attrValue.startsWith("@layout/")) {
                 // <include layout="@layout/xxx" />
                 String includedLayoutPath = fp.substring(0, fp.lastIndexOf(File.separator) + 1) + attrValue.substring(8) + ".xml";
-                Dom4jParser parser = new Dom4jParser(includedLayoutPath);
+                Dom4jParser parser = new Dom4jParser(includedLayoutPath, hierarchy);
                 parser.parse();
                 LayoutTreeNode includedRoot = parser.getLayoutTreeRoot();
                 parent.addChild(includedRoot);
@@ -0,0 +1,71 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/***
+ * 继承关系快照，用于在不运行 Soot 的情况下重放布局解析。
+ * 快照文件每行为一个类，以空格分隔：第一项为类本身，其后为各级父类（由近及远），类名不重复出现；
+ * 即每行就是 ClassHierarchy.getAncestors 返回的列表。以 # 开头的行为注释。
+ */
+public class SnapshotClassHierarchy implements ClassHierarchy {
+
+    private final Map<String, List<String>> ancestorsMap;
+    private final ClassHierarchy delegate;
+
+    /***
+     * @param delegate 快照中不存在的类交给 delegate 查询，查询结果会被记录到快照中；为 null 时只读快照
+     */
+    public SnapshotClassHierarchy(ClassHierarchy delegate) {
+        this.ancestorsMap = new TreeMap<>();
+        this.delegate = delegate;
+    }
+
+    public static SnapshotClassHierarchy load(String fp) throws IOException {
+        SnapshotClassHierarchy hierarchy = new SnapshotClassHierarchy(null);
+        List<String> lines = Files.readAllLines(Paths.get(fp), StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> ancestors = new ArrayList<>(Arrays.asList(line.split("\\s+")));
+            if (ancestors.size() > 1 && ancestors.get(0).equals(ancestors.get(1))) {
+                throw new IOException(fp + ":" + (i + 1) + ": class name repeated in hierarchy snapshot: " + ancestors.get(0));
+            }
+            hierarchy.ancestorsMap.put(ancestors.get(0), ancestors);
+        }
+        return hierarchy;
+    }
+
+    public void save(String fp) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (List<String> ancestors : ancestorsMap.values()) {
+            lines.add(String.join(" ", ancestors));
+        }
+        Files.write(Paths.get(fp), lines, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return ancestorsMap.size();
+    }
+
+    @Override
+    public List<String> getAncestors(String className) {
+        List<String> ancestors = ancestorsMap.get(className);
+        if (ancestors == null && delegate != null) {
+            ancestors = delegate.getAncestors(className);
+            if (ancestors != null) {
+                ancestorsMap.put(className, ancestors);
+            }
+        }
+        return ancestors;
+    }
+}
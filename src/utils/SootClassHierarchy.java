@@ -0,0 +1,28 @@
+package utils;
+
+import soot.Scene;
+import soot.SootClass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * 根据 Soot 运行结果获取控件类的继承关系
+ */
+public class SootClassHierarchy implements ClassHierarchy {
+
+    @Override
+    public List<String> getAncestors(String className) {
+        if (!Scene.v().containsClass(className)) {
+            return null;
+        }
+        SootClass sc = Scene.v().getSootClass(className);
+        List<String> ancestors = new ArrayList<>();
+        while (sc.hasSuperclass()) {
+            ancestors.add(sc.getName());
+            sc = sc.getSuperclass();
+        }
+        ancestors.add(sc.getName());
+        return ancestors;
+    }
+}
@@ -0,0 +1,123 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * 解析 layout 文件夹下的所有布局文件，并将“列表表项的 layout”和“完整页面的 layout”的 token 序列写入文件
+ */
+public class TokenFileWriter {
+
+    public static final String PHASE_LIST = "list";
+    public static final String PHASE_PARSE = "parse";
+    public static final String PHASE_CLASSIFY = "classify";
+    public static final String PHASE_WRITE = "write";
+
+    private final ClassHierarchy hierarchy;
+    private Map<String, Long> phaseNanos;
+
+    public TokenFileWriter(ClassHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /***
+     * 设置后每次 write 都会把各阶段耗时（纳秒）累加到 phaseNanos 中，为 null 时不计时
+     */
+    public void setPhaseNanos(Map<String, Long> phaseNanos) {
+        this.phaseNanos = phaseNanos;
+    }
+
+    /***
+     * @return 读取的 layout 文件数；layout 文件夹不存在或写入失败时返回 -1
+     */
+    public int write(String layoutDirPath, String tokenPath) {
+        File[] files = listLayoutFiles(layoutDirPath);
+        if (files == null) {
+            return -1;
+        }
+        String content = tokenize(files);
+
+        long t = System.nanoTime();
+        try {
+            Files.write(Paths.get(tokenPath), content.getBytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        record(PHASE_WRITE, t);
+        return files.length;
+    }
+
+    /***
+     * @return 按文件名排序的 layout 文件；layout 文件夹不存在时返回 null
+     */
+    public File[] listLayoutFiles(String layoutDirPath) {
+        long t = System.nanoTime();
+        File[] files = new File(layoutDirPath).listFiles();
+        if (files != null) {
+            // listFiles 的顺序依赖于文件系统，按文件名排序以保证输出稳定
+            Arrays.sort(files, Comparator.comparing(File::getName));
+        }
+        record(PHASE_LIST, t);
+        return files;
+    }
+
+    /***
+     * 解析并归类 layout 文件，返回 token 文件的内容：先是列表表项，后是完整页面
+     */
+    public String tokenize(File[] files) {
+        long t = System.nanoTime();
+        StringBuilder itemsb = new StringBuilder();
+        StringBuilder layoutsb = new StringBuilder();
+        for (File f : files) {
+            if (f.isFile()) {
+                // 打开每个文件进行解析，解析结果为 tokens
+                String fileName = f.getName();
+                String fileNameLower = fileName.toLowerCase();
+                Dom4jParser parser = new Dom4jParser(f.getAbsolutePath(), hierarchy);
+                parser.parse();
+                List<String> tokens = parser.getTokens();
+                t = record(PHASE_PARSE, t);
+
+                if (tokens.size() > 0 && (tokens.contains("Toolbar") || tokens.contains("Button") || tokens.contains("TextView") ||
+                        tokens.contains("ImageView") || tokens.contains("EditText") || tokens.contains("CheckBox") ||
+                        tokens.contains("RadioButton") || tokens.contains("Switch") || tokens.contains("List"))) {
+                    boolean isLayout = fileNameLower.contains("fragment") || fileNameLower.contains("activity");
+                    boolean isListItem = fileNameLower.startsWith("item_") || fileNameLower.endsWith("_item.xml") || fileNameLower.contains("_item_") ||
+                            fileNameLower.startsWith("row_") || fileNameLower.endsWith("_row.xml") || fileNameLower.contains("_row_") ||
+                            fileNameLower.startsWith("card_") || fileNameLower.endsWith("_card.xml") || fileNameLower.contains("_card_") ||
+                            fileNameLower.startsWith("cardview_") || fileNameLower.endsWith("_cardview.xml") || fileNameLower.contains("_cardview_") ||
+                            fileNameLower.startsWith("listitem_") || fileNameLower.endsWith("_listitem.xml") || fileNameLower.contains("_listitem_") ||
+                            fileNameLower.startsWith("listrow_") || fileNameLower.endsWith("_listrow.xml") || fileNameLower.contains("_listrow_");
+                    boolean shouldExclude = fileNameLower.startsWith("abc_") || fileNameLower.startsWith("preference_") || fileNameLower.startsWith("notification_") ||
+                            fileNameLower.startsWith("date_picker_") || fileNameLower.startsWith("time_picker_") || fileNameLower.startsWith("select_dialog_") ||
+                            fileNameLower.startsWith("support_simple_spinner_dropdown_item");
+
+                    if (!shouldExclude) {
+                        if (isListItem) {
+                            itemsb.append("2 ").append(fileName).append(" ").append(String.join(" ", tokens)).append("\n");
+                        } else if (isLayout) {
+                            layoutsb.append("1 ").append(fileName).append(" ").append(String.join(" ", tokens)).append("\n");
+                        }
+                    }
+                }
+                t = record(PHASE_CLASSIFY, t);
+            }
+        }
+        return itemsb.append(layoutsb).toString();
+    }
+
+    private long record(String phase, long since) {
+        long now = System.nanoTime();
+        if (phaseNanos != null) {
+            phaseNanos.merge(phase, now - since, Long::sum);
+        }
+        return now;
+    }
+}